@@ -0,0 +1,23 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+@Data
+public class MultiLegTransfer {
+
+    @NotNull
+    @NotEmpty
+    private final List<@Valid @NotNull TransactionDetail> legs;
+
+    @JsonCreator
+    public MultiLegTransfer(@JsonProperty("legs") List<TransactionDetail> legs) {
+        this.legs = legs;
+    }
+}
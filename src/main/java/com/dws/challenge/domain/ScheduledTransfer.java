@@ -0,0 +1,35 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+
+@Data
+public class ScheduledTransfer {
+
+    //Assigned by the scheduler when the transfer is accepted
+    private String transferId;
+
+    @NotNull
+    @Valid
+    private final TransactionDetail transactionDetail;
+
+    @NotNull
+    private final Instant executionTime;
+
+    @JsonCreator
+    public ScheduledTransfer(@JsonProperty("transactionDetail") TransactionDetail transactionDetail,
+                             @JsonProperty("executionTime") Instant executionTime) {
+        this.transactionDetail = transactionDetail;
+        this.executionTime = executionTime;
+    }
+
+    public ScheduledTransfer(String transferId, TransactionDetail transactionDetail, Instant executionTime) {
+        this(transactionDetail, executionTime);
+        this.transferId = transferId;
+    }
+}
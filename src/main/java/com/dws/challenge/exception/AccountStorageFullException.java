@@ -0,0 +1,8 @@
+package com.dws.challenge.exception;
+
+public class AccountStorageFullException extends RuntimeException{
+
+    public AccountStorageFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.dws.challenge.exception;
+
+public class InvalidExecutionTimeException extends RuntimeException{
+
+    public InvalidExecutionTimeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.dws.challenge.exception;
+
+public class UnsupportedBalanceException extends RuntimeException{
+
+    public UnsupportedBalanceException(String message) {
+        super(message);
+    }
+}
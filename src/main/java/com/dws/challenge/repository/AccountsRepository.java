@@ -2,6 +2,9 @@ package com.dws.challenge.repository;
 
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.UnsupportedBalanceException;
+
+import java.math.BigDecimal;
 
 public interface AccountsRepository {
 
@@ -9,6 +12,12 @@ public interface AccountsRepository {
 
   Account getAccount(String accountId);
 
+  //Saves a changed balance, callers hold the account's transfer lock
+  void updateAccount(Account account);
+
+  //Called for every new balance before any account is changed, so that a transfer is applied entirely or not at all
+  void validateBalance(String accountId, BigDecimal balance) throws UnsupportedBalanceException;
+
   void clearAccounts();
 
   boolean isAccountIdPresent(String accountId);
@@ -2,12 +2,16 @@ package com.dws.challenge.repository;
 
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.UnsupportedBalanceException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Repository
+@ConditionalOnProperty(name = "challenge.accounts.repository", havingValue = "in-memory", matchIfMissing = true)
 public class AccountsRepositoryInMemory implements AccountsRepository {
     
     private final Map<String, Account> accounts = new ConcurrentHashMap<>();
@@ -26,6 +30,16 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
         return accounts.get(accountId);
     }
 
+    @Override
+    public void updateAccount(Account account) {
+        accounts.replace(account.getAccountId(), account);
+    }
+
+    @Override
+    public void validateBalance(String accountId, BigDecimal balance) throws UnsupportedBalanceException {
+        //Any balance can be kept on the heap
+    }
+
     @Override
     public void clearAccounts() {
         accounts.clear();
@@ -0,0 +1,156 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.AccountStorageFullException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InvalidAccountIDException;
+import com.dws.challenge.exception.UnsupportedBalanceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps at most hotCapacity accounts on the heap and every account in a memory mapped file.
+ * The file is written through on every update, so evicting a hot account is just dropping it and the
+ * heap stays bounded however many accounts exist. Hot accounts are evicted in CLOCK (second chance) order.
+ * Faulting an account in and updating it run inside the hot map's per key compute, so an update is never
+ * overtaken by a stale read of the file.
+ */
+@Repository
+@ConditionalOnProperty(name = "challenge.accounts.repository", havingValue = "tiered")
+public class AccountsRepositoryTiered implements AccountsRepository {
+
+    private final int hotCapacity;
+
+    private final MappedAccountsFile coldAccounts;
+
+    private final Map<String, HotAccount> hotAccounts = new ConcurrentHashMap<>();
+
+    //Hot account ids in admission order, the hand of the CLOCK
+    private final Queue<String> clock = new ConcurrentLinkedQueue<>();
+
+    @Autowired
+    public AccountsRepositoryTiered(@Value("${challenge.accounts.hot-capacity}") int hotCapacity,
+                                    @Value("${challenge.accounts.cold-capacity}") long coldCapacity,
+                                    @Value("${challenge.accounts.cold-path}") String coldPath) {
+        this.hotCapacity = hotCapacity;
+        this.coldAccounts = new MappedAccountsFile(Paths.get(coldPath), coldCapacity);
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException, InvalidAccountIDException,
+            UnsupportedBalanceException, AccountStorageFullException {
+        if (!MappedAccountsFile.isStorable(account.getAccountId())) {
+            throw new InvalidAccountIDException("Account id " + account.getAccountId() + " is longer than "
+                    + MappedAccountsFile.MAX_ID_BYTES + " bytes!");
+        }
+        validateBalance(account.getAccountId(), account.getBalance());
+        if (!this.coldAccounts.insert(account)) {
+            throw new DuplicateAccountIdException(
+                    "Account id " + account.getAccountId() + " already exists!");
+        }
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        HotAccount hotAccount = this.hotAccounts.computeIfAbsent(accountId, k -> {
+            Account account = this.coldAccounts.read(k);
+            return account == null ? null : new HotAccount(account);
+        });
+        if (hotAccount == null) {
+            return null;
+        }
+        //Enqueued only once the mapping is visible, otherwise the CLOCK could skip it and never evict it
+        if (hotAccount.queued.compareAndSet(false, true)) {
+            this.clock.offer(accountId);
+        }
+        hotAccount.referenced = true;
+        Account account = hotAccount.account;
+        evictIfOverBudget();
+        return account;
+    }
+
+    @Override
+    public void updateAccount(Account account) {
+        this.hotAccounts.compute(account.getAccountId(), (k, hotAccount) -> {
+            this.coldAccounts.update(account);
+            if (hotAccount != null) {
+                hotAccount.account = account;
+            }
+            return hotAccount;
+        });
+    }
+
+    @Override
+    public void validateBalance(String accountId, BigDecimal balance) throws UnsupportedBalanceException {
+        if (!MappedAccountsFile.isStorable(balance)) {
+            throw new UnsupportedBalanceException("Balance " + balance + " of account id " + accountId
+                    + " has too many significant digits to be stored!");
+        }
+    }
+
+    @Override
+    public void clearAccounts() {
+        this.hotAccounts.clear();
+        this.clock.clear();
+        this.coldAccounts.clear();
+    }
+
+    @Override
+    public boolean isAccountIdPresent(String accountId) {
+        return this.hotAccounts.containsKey(accountId) || this.coldAccounts.contains(accountId);
+    }
+
+    public int getHotAccountCount() {
+        return this.hotAccounts.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        this.coldAccounts.close();
+    }
+
+    private void evictIfOverBudget() {
+        while (this.hotAccounts.size() > this.hotCapacity) {
+            String accountId = this.clock.poll();
+            if (accountId == null) {
+                return;
+            }
+            HotAccount hotAccount = this.hotAccounts.get(accountId);
+            if (hotAccount == null) {
+                continue;
+            }
+            if (hotAccount.referenced) {
+                hotAccount.referenced = false;
+                this.clock.offer(accountId);
+                continue;
+            }
+            //The file is always up to date, a concurrent update simply finds the account cold
+            this.hotAccounts.remove(accountId, hotAccount);
+        }
+    }
+
+    private static final class HotAccount {
+
+        private volatile Account account;
+
+        private volatile boolean referenced = true;
+
+        private final AtomicBoolean queued = new AtomicBoolean();
+
+        private HotAccount(Account account) {
+            this.account = account;
+        }
+    }
+
+}
@@ -0,0 +1,279 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.AccountStorageFullException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Memory mapped, fixed record account file. The file is an open addressing hash table keyed by account id,
+ * so it needs no index on the heap. Accounts are never deleted, so linear probing needs no tombstones.
+ * Inserts stop at MAX_LOAD_FACTOR so that probe sequences, and the time the slots lock is held, stay short.
+ * The first record is a header holding the number of stored accounts (8), so opening the file reads no slots.
+ * Record layout: state (1), id length (2), id (64), balance scale (4), unscaled length (1), unscaled value (16).
+ */
+class MappedAccountsFile {
+
+    static final int MAX_ID_BYTES = 64;
+    static final int MAX_UNSCALED_BYTES = 16;
+
+    private static final int STATE_OFFSET = 0;
+    private static final int ID_LENGTH_OFFSET = 1;
+    private static final int ID_OFFSET = 3;
+    private static final int SCALE_OFFSET = ID_OFFSET + MAX_ID_BYTES;
+    private static final int UNSCALED_LENGTH_OFFSET = SCALE_OFFSET + 4;
+    private static final int UNSCALED_OFFSET = UNSCALED_LENGTH_OFFSET + 1;
+    static final int RECORD_SIZE = UNSCALED_OFFSET + MAX_UNSCALED_BYTES;
+
+    private static final int HEADER_RECORDS = 1;
+    private static final int STORED_ACCOUNTS_OFFSET = 0;
+
+    static final double MAX_LOAD_FACTOR = 0.7;
+
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+
+    //A single mapping is limited to 2GB, so the file is mapped in segments of whole records
+    private static final long RECORDS_PER_SEGMENT = Integer.MAX_VALUE / RECORD_SIZE;
+
+    private final long capacity;
+    private final long maxAccounts;
+    private long storedAccounts;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+
+    //Probing and claiming slots take the write lock, reading and updating a known record the read lock
+    private final ReadWriteLock slotsLock = new ReentrantReadWriteLock();
+
+    MappedAccountsFile(Path path, long capacity) {
+        this.capacity = capacity;
+        this.maxAccounts = (long) (capacity * MAX_LOAD_FACTOR);
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long records = capacity + HEADER_RECORDS;
+            long fileSize = records * RECORD_SIZE;
+            if (this.channel.size() != 0 && this.channel.size() != fileSize) {
+                throw new IllegalStateException("Account file " + path + " was created with a different capacity");
+            }
+            int segmentCount = (int) ((records + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT);
+            this.segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long position = i * RECORDS_PER_SEGMENT * RECORD_SIZE;
+                this.segments[i] = this.channel.map(FileChannel.MapMode.READ_WRITE, position,
+                        Math.min(RECORDS_PER_SEGMENT * RECORD_SIZE, fileSize - position));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map account file " + path, e);
+        }
+        this.storedAccounts = this.segments[0].getLong(STORED_ACCOUNTS_OFFSET);
+    }
+
+    /**
+     * Returns false if an account with the same id is already stored.
+     */
+    boolean insert(Account account) throws AccountStorageFullException {
+        byte[] id = encodeId(account.getAccountId());
+        this.slotsLock.writeLock().lock();
+        try {
+            long slot = findSlot(id);
+            if (slot < 0) {
+                throw new IllegalStateException("Account file is full, capacity is " + this.capacity);
+            }
+            MappedByteBuffer segment = segment(slot);
+            int offset = offset(slot);
+            if (segment.get(offset + STATE_OFFSET) == USED) {
+                return false;
+            }
+            if (this.storedAccounts >= this.maxAccounts) {
+                throw new AccountStorageFullException("Account storage is full, it holds at most " + this.maxAccounts
+                        + " accounts!");
+            }
+            segment.putShort(offset + ID_LENGTH_OFFSET, (short) id.length);
+            segment.put(offset + ID_OFFSET, id);
+            writeBalance(segment, offset, account.getBalance());
+            segment.put(offset + STATE_OFFSET, USED);
+            this.storedAccounts++;
+            this.segments[0].putLong(STORED_ACCOUNTS_OFFSET, this.storedAccounts);
+            return true;
+        } finally {
+            this.slotsLock.writeLock().unlock();
+        }
+    }
+
+    Account read(String accountId) {
+        byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_BYTES) {
+            return null;
+        }
+        this.slotsLock.readLock().lock();
+        try {
+            long slot = findUsedSlot(id);
+            if (slot < 0) {
+                return null;
+            }
+            return new Account(accountId, readBalance(segment(slot), offset(slot)));
+        } finally {
+            this.slotsLock.readLock().unlock();
+        }
+    }
+
+    boolean contains(String accountId) {
+        byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_BYTES) {
+            return false;
+        }
+        this.slotsLock.readLock().lock();
+        try {
+            return findUsedSlot(id) >= 0;
+        } finally {
+            this.slotsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Callers must not update the same account concurrently; updates of different accounts may run in parallel.
+     */
+    void update(Account account) {
+        this.slotsLock.readLock().lock();
+        try {
+            long slot = findUsedSlot(encodeId(account.getAccountId()));
+            if (slot < 0) {
+                throw new IllegalStateException("Account id " + account.getAccountId() + " is not stored");
+            }
+            writeBalance(segment(slot), offset(slot), account.getBalance());
+        } finally {
+            this.slotsLock.readLock().unlock();
+        }
+    }
+
+    void clear() {
+        this.slotsLock.writeLock().lock();
+        try {
+            for (long slot = 0; slot < this.capacity; slot++) {
+                segment(slot).put(offset(slot) + STATE_OFFSET, EMPTY);
+            }
+            this.storedAccounts = 0;
+            this.segments[0].putLong(STORED_ACCOUNTS_OFFSET, 0);
+        } finally {
+            this.slotsLock.writeLock().unlock();
+        }
+    }
+
+    void close() {
+        this.slotsLock.writeLock().lock();
+        try {
+            for (MappedByteBuffer segment : this.segments) {
+                segment.force();
+            }
+            this.channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close account file", e);
+        } finally {
+            this.slotsLock.writeLock().unlock();
+        }
+    }
+
+    //Returns the slot holding the id or the first empty slot on its probe sequence, -1 if the table is full
+    private long findSlot(byte[] id) {
+        long slot = Math.floorMod(hash(id), this.capacity);
+        for (long probes = 0; probes < this.capacity; probes++) {
+            MappedByteBuffer segment = segment(slot);
+            int offset = offset(slot);
+            if (segment.get(offset + STATE_OFFSET) == EMPTY || idEquals(segment, offset, id)) {
+                return slot;
+            }
+            slot = slot + 1 == this.capacity ? 0 : slot + 1;
+        }
+        return -1;
+    }
+
+    private long findUsedSlot(byte[] id) {
+        long slot = findSlot(id);
+        if (slot < 0 || segment(slot).get(offset(slot) + STATE_OFFSET) == EMPTY) {
+            return -1;
+        }
+        return slot;
+    }
+
+    private static boolean idEquals(MappedByteBuffer segment, int offset, byte[] id) {
+        if (segment.getShort(offset + ID_LENGTH_OFFSET) != id.length) {
+            return false;
+        }
+        for (int i = 0; i < id.length; i++) {
+            if (segment.get(offset + ID_OFFSET + i) != id[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isStorable(String accountId) {
+        return accountId.getBytes(StandardCharsets.UTF_8).length <= MAX_ID_BYTES;
+    }
+
+    static boolean isStorable(BigDecimal balance) {
+        //toByteArray() needs bitLength / 8 + 1 bytes, the extra bit being the sign
+        return balance.unscaledValue().bitLength() < MAX_UNSCALED_BYTES * 8;
+    }
+
+    private static void writeBalance(MappedByteBuffer segment, int offset, BigDecimal balance) {
+        byte[] unscaled = balance.unscaledValue().toByteArray();
+        if (unscaled.length > MAX_UNSCALED_BYTES) {
+            throw new IllegalArgumentException("Balance " + balance + " is too large to store");
+        }
+        segment.putInt(offset + SCALE_OFFSET, balance.scale());
+        segment.put(offset + UNSCALED_LENGTH_OFFSET, (byte) unscaled.length);
+        segment.put(offset + UNSCALED_OFFSET, unscaled);
+    }
+
+    private static BigDecimal readBalance(MappedByteBuffer segment, int offset) {
+        byte[] unscaled = new byte[segment.get(offset + UNSCALED_LENGTH_OFFSET)];
+        segment.get(offset + UNSCALED_OFFSET, unscaled);
+        return new BigDecimal(new BigInteger(unscaled), segment.getInt(offset + SCALE_OFFSET));
+    }
+
+    private static byte[] encodeId(String accountId) {
+        byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Account id " + accountId + " is longer than " + MAX_ID_BYTES + " bytes");
+        }
+        return id;
+    }
+
+    //64 bit FNV-1a followed by the MurmurHash3 finalizer, which spreads similar ids such as Id-1, Id-2 over the table
+    private static long hash(byte[] id) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : id) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    //Slots follow the header records
+    private MappedByteBuffer segment(long slot) {
+        return this.segments[(int) ((slot + HEADER_RECORDS) / RECORDS_PER_SEGMENT)];
+    }
+
+    private static int offset(long slot) {
+        return (int) (((slot + HEADER_RECORDS) % RECORDS_PER_SEGMENT) * RECORD_SIZE);
+    }
+
+}
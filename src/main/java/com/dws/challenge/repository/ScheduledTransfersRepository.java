@@ -0,0 +1,20 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.ScheduledTransfer;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ScheduledTransfersRepository {
+
+  void saveScheduledTransfer(ScheduledTransfer scheduledTransfer);
+
+  void removeScheduledTransfer(String transferId);
+
+  void removeScheduledTransfers(Collection<String> transferIds);
+
+  List<ScheduledTransfer> loadScheduledTransfers();
+
+  void clearScheduledTransfers();
+
+}
@@ -0,0 +1,258 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.domain.TransactionDetail;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps pending scheduled transfers in an append-only journal so they survive a restart.
+ * Every schedule appends an add record and every execution or cancellation appends a remove record.
+ * The journal is compacted to the live records whenever it is loaded, and while running once the
+ * dead records outnumber the live ones; a record torn by a crash is dropped at that point.
+ * Appends and the compacted journal are forced to disk, so records survive a power loss as well as a restart.
+ */
+@Repository
+@Slf4j
+public class ScheduledTransfersRepositoryFile implements ScheduledTransfersRepository {
+
+    private static final byte ADD_RECORD = 1;
+    private static final byte REMOVE_RECORD = 2;
+
+    //Below this many dead records compaction is not worth rewriting the journal
+    private static final long COMPACTION_MIN_DEAD_RECORDS = 10_000;
+
+    private final Path journalPath;
+
+    private FileChannel journal;
+
+    //Set when a failed append could not be undone, the journal is compacted before anything else is appended to it
+    private boolean journalDamaged;
+
+    private long liveRecords;
+
+    private long deadRecords;
+
+    @Autowired
+    public ScheduledTransfersRepositoryFile(@Value("${challenge.scheduler.journal-path}") String journalPath) {
+        this.journalPath = Paths.get(journalPath).toAbsolutePath();
+    }
+
+    @Override
+    public synchronized void saveScheduledTransfer(ScheduledTransfer scheduledTransfer) {
+        //Encoded before the journal is touched so that a failure cannot leave half a record behind
+        byte[] record = encodeAddRecord(scheduledTransfer);
+        appendToJournal(record, "Could not persist scheduled transfer " + scheduledTransfer.getTransferId());
+        this.liveRecords++;
+    }
+
+    @Override
+    public synchronized void removeScheduledTransfer(String transferId) {
+        removeScheduledTransfers(List.of(transferId));
+    }
+
+    @Override
+    public synchronized void removeScheduledTransfers(Collection<String> transferIds) {
+        if (transferIds.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        for (String transferId : transferIds) {
+            records.writeBytes(encodeRemoveRecord(transferId));
+        }
+        appendToJournal(records.toByteArray(), "Could not remove " + transferIds.size() + " scheduled transfers");
+        this.liveRecords = Math.max(0, this.liveRecords - transferIds.size());
+        //Both the add and the remove record of every transfer are now dead
+        this.deadRecords += 2L * transferIds.size();
+        if (this.deadRecords >= COMPACTION_MIN_DEAD_RECORDS && this.deadRecords > this.liveRecords) {
+            loadScheduledTransfers();
+        }
+    }
+
+    @Override
+    public synchronized List<ScheduledTransfer> loadScheduledTransfers() {
+        closeJournal();
+        Map<String, ScheduledTransfer> pending = new LinkedHashMap<>();
+        if (Files.exists(this.journalPath)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.journalPath)))) {
+                readRecords(in, pending);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read scheduled transfers from " + this.journalPath, e);
+            }
+        }
+        compact(pending.values());
+        this.journalDamaged = false;
+        this.liveRecords = pending.size();
+        this.deadRecords = 0;
+        return new ArrayList<>(pending.values());
+    }
+
+    @Override
+    public synchronized void clearScheduledTransfers() {
+        closeJournal();
+        this.liveRecords = 0;
+        this.deadRecords = 0;
+        this.journalDamaged = false;
+        try {
+            Files.deleteIfExists(this.journalPath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not clear scheduled transfers in " + this.journalPath, e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void closeJournal() {
+        if (this.journal == null) {
+            return;
+        }
+        try {
+            this.journal.close();
+        } catch (IOException e) {
+            log.warn("Could not close scheduled transfers journal {}", this.journalPath, e);
+        }
+        this.journal = null;
+    }
+
+    private void readRecords(DataInputStream in, Map<String, ScheduledTransfer> pending) throws IOException {
+        while (true) {
+            int recordType = in.read();
+            if (recordType == -1) {
+                return;
+            }
+            try {
+                String transferId = in.readUTF();
+                if (recordType == ADD_RECORD) {
+                    TransactionDetail transactionDetail = new TransactionDetail(in.readUTF(), in.readUTF(),
+                            new BigDecimal(in.readUTF()));
+                    Instant executionTime = Instant.ofEpochMilli(in.readLong());
+                    pending.put(transferId, new ScheduledTransfer(transferId, transactionDetail, executionTime));
+                } else if (recordType == REMOVE_RECORD) {
+                    pending.remove(transferId);
+                } else {
+                    log.warn("Unknown record type {} in {}, ignoring the rest of the journal", recordType, this.journalPath);
+                    return;
+                }
+            } catch (EOFException e) {
+                log.warn("Dropping incomplete last record of {}", this.journalPath);
+                return;
+            }
+        }
+    }
+
+    private void compact(Iterable<ScheduledTransfer> pending) {
+        Path compactedPath = this.journalPath.resolveSibling(this.journalPath.getFileName() + ".compact");
+        try {
+            Files.createDirectories(this.journalPath.getParent());
+            try (FileOutputStream file = new FileOutputStream(compactedPath.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+                for (ScheduledTransfer scheduledTransfer : pending) {
+                    out.write(encodeAddRecord(scheduledTransfer));
+                }
+                out.flush();
+                //Otherwise the rename could reach the disk before the contents and leave an empty journal
+                file.getFD().sync();
+            }
+            Files.move(compactedPath, this.journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not compact scheduled transfers journal " + this.journalPath, e);
+        }
+    }
+
+    private static byte[] encodeAddRecord(ScheduledTransfer scheduledTransfer) {
+        TransactionDetail transactionDetail = scheduledTransfer.getTransactionDetail();
+        long executionTimeMs = scheduledTransfer.getExecutionTime().toEpochMilli();
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(record)) {
+            out.writeByte(ADD_RECORD);
+            out.writeUTF(scheduledTransfer.getTransferId());
+            out.writeUTF(transactionDetail.getAccountFromId());
+            out.writeUTF(transactionDetail.getAccountToId());
+            out.writeUTF(transactionDetail.getTransferAmount().toPlainString());
+            out.writeLong(executionTimeMs);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Scheduled transfer " + scheduledTransfer.getTransferId() + " cannot be stored", e);
+        }
+        return record.toByteArray();
+    }
+
+    private static byte[] encodeRemoveRecord(String transferId) {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(record)) {
+            out.writeByte(REMOVE_RECORD);
+            out.writeUTF(transferId);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Scheduled transfer " + transferId + " cannot be removed", e);
+        }
+        return record.toByteArray();
+    }
+
+    private void appendToJournal(byte[] records, String failureMessage) {
+        long journalSize = -1;
+        try {
+            FileChannel out = openJournal();
+            journalSize = out.size();
+            ByteBuffer buffer = ByteBuffer.wrap(records);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(false);
+        } catch (IOException e) {
+            discardFailedAppend(journalSize);
+            throw new UncheckedIOException(failureMessage, e);
+        }
+    }
+
+    //Part of the records may have reached the file, and anything appended after them would be misread
+    private void discardFailedAppend(long journalSize) {
+        if (this.journal != null && journalSize >= 0) {
+            try {
+                this.journal.truncate(journalSize);
+            } catch (IOException e) {
+                //Compacting drops the torn record, as it is always the last one in the journal
+                log.warn("Could not undo a failed append to {}, compacting it first", this.journalPath, e);
+                this.journalDamaged = true;
+            }
+        }
+        closeJournal();
+    }
+
+    private FileChannel openJournal() throws IOException {
+        if (this.journalDamaged) {
+            loadScheduledTransfers();
+        }
+        if (this.journal == null) {
+            Files.createDirectories(this.journalPath.getParent());
+            this.journal = FileChannel.open(this.journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        return this.journal;
+    }
+
+}
@@ -1,10 +1,12 @@
 package com.dws.challenge.service;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MultiLegTransfer;
 import com.dws.challenge.domain.TransactionDetail;
 import com.dws.challenge.exception.InsufficientBalanceException;
 import com.dws.challenge.exception.InvalidAccountIDException;
 import com.dws.challenge.exception.SameAccountIdException;
+import com.dws.challenge.exception.UnsupportedBalanceException;
 import com.dws.challenge.repository.AccountsRepository;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,8 +14,12 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -23,7 +29,10 @@ public class AccountsService {
   @Getter
   private final AccountsRepository accountsRepository;
 
-  private final Map<String, Lock> accountLockMap = new ConcurrentHashMap<>();
+  //A fixed number of lock stripes keeps the lock footprint constant however many accounts exist
+  private static final int ACCOUNT_LOCK_STRIPES = 4096;
+
+  private final Lock[] accountLocks = new Lock[ACCOUNT_LOCK_STRIPES];
 
   @Autowired
   @Qualifier("EmailNotification")
@@ -32,6 +41,9 @@ public class AccountsService {
   @Autowired
   public AccountsService(AccountsRepository accountsRepository) {
     this.accountsRepository = accountsRepository;
+    for (int i = 0; i < ACCOUNT_LOCK_STRIPES; i++) {
+      this.accountLocks[i] = new ReentrantLock();
+    }
   }
 
   public void createAccount(Account account) {
@@ -47,17 +59,17 @@ public class AccountsService {
     String accountToId = transactionDetail.getAccountToId();
     BigDecimal transferAmount = transactionDetail.getTransferAmount();
 
-    Lock fromAccountLock = accountLockMap.computeIfAbsent(accountFromId, k -> new ReentrantLock());
-    Lock toAccountLock = accountLockMap.computeIfAbsent(accountToId, k -> new ReentrantLock());
+    int fromLockStripe = lockStripe(accountFromId);
+    int toLockStripe = lockStripe(accountToId);
 
-    //Acquire the locks in the consistent order based on the comparison of the AccountId
+    //Acquire the locks in the consistent order based on the lock stripe, the locks are reentrant if both share one
     Lock firstLock, secondLock;
-    if (accountFromId.compareTo(accountToId) < 0) {
-      firstLock = fromAccountLock;
-      secondLock = toAccountLock;
+    if (fromLockStripe < toLockStripe) {
+      firstLock = accountLocks[fromLockStripe];
+      secondLock = accountLocks[toLockStripe];
     } else {
-      firstLock = toAccountLock;
-      secondLock = fromAccountLock;
+      firstLock = accountLocks[toLockStripe];
+      secondLock = accountLocks[fromLockStripe];
     }
 
     firstLock.lock();
@@ -73,7 +85,41 @@ public class AccountsService {
     }
   }
 
-  private void executeTransfer(String accountFromId, String accountToId, BigDecimal transferAmount) throws InvalidAccountIDException, SameAccountIdException, InsufficientBalanceException{
+  /**
+   * Applies every leg of the transfer or none of them. Each lock stripe is locked once, in the same
+   * global order used by transferAmount, and each account is read and written once however many legs touch it.
+   * Legs are applied in order, so an account may pass on money it receives in an earlier leg.
+   */
+  public void transferAmounts(MultiLegTransfer multiLegTransfer) {
+    List<TransactionDetail> legs = multiLegTransfer.getLegs();
+
+    SortedSet<String> accountIds = new TreeSet<>();
+    for (TransactionDetail leg : legs) {
+      accountIds.add(leg.getAccountFromId());
+      accountIds.add(leg.getAccountToId());
+    }
+
+    SortedSet<Integer> lockStripes = new TreeSet<>();
+    for (String accountId : accountIds) {
+      lockStripes.add(lockStripe(accountId));
+    }
+
+    List<Lock> acquiredLocks = new ArrayList<>(lockStripes.size());
+    try {
+      for (int lockStripe : lockStripes) {
+        Lock lock = accountLocks[lockStripe];
+        lock.lock();
+        acquiredLocks.add(lock);
+      }
+      executeTransfers(legs, accountIds);
+    } finally {
+      for (int i = acquiredLocks.size() - 1; i >= 0; i--) {
+        acquiredLocks.get(i).unlock();
+      }
+    }
+  }
+
+  public void validateTransfer(String accountFromId, String accountToId) throws InvalidAccountIDException, SameAccountIdException {
     if (!(this.accountsRepository.isAccountIdPresent(accountFromId) && this.accountsRepository.isAccountIdPresent(accountToId))) {
       throw new InvalidAccountIDException("accountFromId " + accountFromId +
               " or accountToId " + accountToId + " does not exist!");
@@ -82,13 +128,78 @@ public class AccountsService {
       throw new SameAccountIdException("accountFromId " + accountFromId +
               " and accountToId " + accountToId + " are same!");
     }
+  }
+
+  private static int lockStripe(String accountId) {
+    return Math.floorMod(accountId.hashCode(), ACCOUNT_LOCK_STRIPES);
+  }
+
+  private void executeTransfers(List<TransactionDetail> legs, SortedSet<String> accountIds) throws InvalidAccountIDException, SameAccountIdException, InsufficientBalanceException, UnsupportedBalanceException{
+    //Each account is looked up once, a missing one fails every leg that uses it in the same way validateTransfer does
+    Map<String, Account> accounts = new HashMap<>();
+    for (String accountId : accountIds) {
+      accounts.put(accountId, this.accountsRepository.getAccount(accountId));
+    }
+    for (TransactionDetail leg : legs) {
+      String accountFromId = leg.getAccountFromId();
+      String accountToId = leg.getAccountToId();
+      if (accounts.get(accountFromId) == null || accounts.get(accountToId) == null) {
+        throw new InvalidAccountIDException("accountFromId " + accountFromId +
+                " or accountToId " + accountToId + " does not exist!");
+      }
+      if (accountFromId.equals(accountToId)) {
+        throw new SameAccountIdException("accountFromId " + accountFromId +
+                " and accountToId " + accountToId + " are same!");
+      }
+    }
+    Map<String, BigDecimal> balances = new HashMap<>();
+    for (String accountId : accountIds) {
+      balances.put(accountId, accounts.get(accountId).getBalance());
+    }
+
+    //Work on a copy of the balances so that nothing is applied unless every leg succeeds
+    for (TransactionDetail leg : legs) {
+      String accountFromId = leg.getAccountFromId();
+      BigDecimal fromBalance = balances.get(accountFromId);
+      if (fromBalance.compareTo(leg.getTransferAmount()) < 0) {
+        throw new InsufficientBalanceException("Insufficient balance in accountFromId " + accountFromId);
+      }
+      balances.put(accountFromId, fromBalance.subtract(leg.getTransferAmount()));
+      balances.merge(leg.getAccountToId(), leg.getTransferAmount(), BigDecimal::add);
+    }
+    for (String accountId : accountIds) {
+      this.accountsRepository.validateBalance(accountId, balances.get(accountId));
+    }
+    for (String accountId : accountIds) {
+      Account account = accounts.get(accountId);
+      account.setBalance(balances.get(accountId));
+      this.accountsRepository.updateAccount(account);
+    }
+
+    //send notification to both the accounts of every leg with the transaction details message
+    for (TransactionDetail leg : legs) {
+      this.notificationService.notifyAboutTransfer(accounts.get(leg.getAccountFromId()),
+              "Amount " + leg.getTransferAmount() + " transferred to " + leg.getAccountToId());
+      this.notificationService.notifyAboutTransfer(accounts.get(leg.getAccountToId()),
+              "Amount " + leg.getTransferAmount() + " transferred from " + leg.getAccountFromId());
+    }
+  }
+
+  private void executeTransfer(String accountFromId, String accountToId, BigDecimal transferAmount) throws InvalidAccountIDException, SameAccountIdException, InsufficientBalanceException, UnsupportedBalanceException{
+    validateTransfer(accountFromId, accountToId);
     Account fromAccount = this.accountsRepository.getAccount(accountFromId);
     Account toAccount = this.accountsRepository.getAccount(accountToId);
     if (fromAccount.getBalance().compareTo(transferAmount) < 0) {
       throw new InsufficientBalanceException("Insufficient balance in accountFromId " + accountFromId);
     }
-    fromAccount.setBalance(fromAccount.getBalance().subtract(transferAmount));
-    toAccount.setBalance(toAccount.getBalance().add(transferAmount));
+    BigDecimal fromBalance = fromAccount.getBalance().subtract(transferAmount);
+    BigDecimal toBalance = toAccount.getBalance().add(transferAmount);
+    this.accountsRepository.validateBalance(accountFromId, fromBalance);
+    this.accountsRepository.validateBalance(accountToId, toBalance);
+    fromAccount.setBalance(fromBalance);
+    toAccount.setBalance(toBalance);
+    this.accountsRepository.updateAccount(fromAccount);
+    this.accountsRepository.updateAccount(toAccount);
 
     //send notification to both the accounts with the transaction details message
     this.notificationService.notifyAboutTransfer(fromAccount, "Amount " + transferAmount + " transferred to " + accountToId);
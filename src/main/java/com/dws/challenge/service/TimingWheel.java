@@ -0,0 +1,170 @@
+package com.dws.challenge.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel. Each level is a ring of buckets that are one tick of that level wide;
+ * the next level's tick is a whole revolution of the level below and is only created when needed.
+ * Adding and cancelling an entry are O(1); advancing the clock drains one bucket per level tick and
+ * cascades entries from a higher level down when its bucket comes due.
+ * Not thread safe, callers guard it with their own lock.
+ */
+class TimingWheel<T> {
+
+  private final long tickMs;
+  private final int wheelSize;
+  private final long interval;
+  private final Bucket<T>[] buckets;
+  private long currentTime;
+  private TimingWheel<T> overflowWheel;
+
+  /**
+   * The clock starts one tick behind startMs so that a bucket is only drained once every entry in it is due.
+   */
+  TimingWheel(long tickMs, int wheelSize, long startMs) {
+    this(tickMs, wheelSize);
+    long lagged = startMs - tickMs + 1;
+    this.currentTime = lagged - Math.floorMod(lagged, tickMs);
+  }
+
+  private TimingWheel(TimingWheel<T> underlyingWheel) {
+    this(underlyingWheel.interval, underlyingWheel.wheelSize);
+    this.currentTime = underlyingWheel.currentTime - (underlyingWheel.currentTime % this.tickMs);
+  }
+
+  @SuppressWarnings("unchecked")
+  private TimingWheel(long tickMs, int wheelSize) {
+    this.tickMs = tickMs;
+    this.wheelSize = wheelSize;
+    this.interval = tickMs * wheelSize;
+    this.buckets = new Bucket[wheelSize];
+    for (int i = 0; i < wheelSize; i++) {
+      this.buckets[i] = new Bucket<>();
+    }
+  }
+
+  /**
+   * Returns false if the entry is already due, in which case it is not stored.
+   * Throws IllegalArgumentException if the entry expires further ahead than horizonMs.
+   */
+  boolean add(Entry<T> entry) {
+    long expirationMs = entry.expirationMs;
+    if (expirationMs < this.currentTime + this.tickMs) {
+      return false;
+    }
+    //Compared as a distance so that a wide top level cannot overflow currentTime + interval
+    if (expirationMs - this.currentTime < this.interval) {
+      long virtualId = expirationMs / this.tickMs;
+      this.buckets[(int) (virtualId % this.wheelSize)].add(entry);
+      return true;
+    }
+    if (this.overflowWheel == null) {
+      if (this.interval > Long.MAX_VALUE / this.wheelSize) {
+        throw new IllegalArgumentException("Expiration " + expirationMs + " is beyond the horizon of the timing wheel");
+      }
+      this.overflowWheel = new TimingWheel<>(this);
+    }
+    return this.overflowWheel.add(entry);
+  }
+
+  /**
+   * How far ahead of the clock an entry can always be added. Levels stop before their interval would
+   * overflow a long, and the top level's clock may trail this one by up to one of its ticks.
+   */
+  long horizonMs() {
+    long topInterval = this.interval;
+    while (topInterval <= Long.MAX_VALUE / this.wheelSize) {
+      topInterval *= this.wheelSize;
+    }
+    return topInterval - topInterval / this.wheelSize;
+  }
+
+  /**
+   * Moves the clock forward one tick at a time and hands every entry expiring at or before timeMs to expired.
+   */
+  void advanceClock(long timeMs, Consumer<Entry<T>> expired) {
+    Consumer<Entry<T>> reinsert = entry -> {
+      if (!add(entry)) {
+        expired.accept(entry);
+      }
+    };
+    while (this.currentTime + 2 * this.tickMs - 1 <= timeMs) {
+      tick(this.currentTime + this.tickMs, reinsert);
+    }
+  }
+
+  private void tick(long timeMs, Consumer<Entry<T>> reinsert) {
+    this.currentTime = timeMs;
+    this.buckets[(int) ((timeMs / this.tickMs) % this.wheelSize)].drain(reinsert);
+    //A full revolution of this level is one tick of the next level
+    if (this.overflowWheel != null && timeMs % this.overflowWheel.tickMs == 0) {
+      this.overflowWheel.tick(timeMs, reinsert);
+    }
+  }
+
+  static final class Entry<T> {
+
+    private final T value;
+    private final long expirationMs;
+    private Bucket<T> bucket;
+    private Entry<T> prev;
+    private Entry<T> next;
+
+    Entry(T value, long expirationMs) {
+      this.value = value;
+      this.expirationMs = expirationMs;
+    }
+
+    T getValue() {
+      return this.value;
+    }
+
+    void cancel() {
+      if (this.bucket != null) {
+        this.bucket.remove(this);
+      }
+    }
+  }
+
+  //Doubly linked list with a sentinel head so that entries can unlink themselves in O(1)
+  private static final class Bucket<T> {
+
+    private final Entry<T> head = new Entry<>(null, -1L);
+
+    Bucket() {
+      this.head.prev = this.head;
+      this.head.next = this.head;
+    }
+
+    void add(Entry<T> entry) {
+      entry.bucket = this;
+      entry.next = this.head;
+      entry.prev = this.head.prev;
+      this.head.prev.next = entry;
+      this.head.prev = entry;
+    }
+
+    void remove(Entry<T> entry) {
+      entry.prev.next = entry.next;
+      entry.next.prev = entry.prev;
+      entry.prev = null;
+      entry.next = null;
+      entry.bucket = null;
+    }
+
+    void drain(Consumer<Entry<T>> consumer) {
+      Entry<T> entry = this.head.next;
+      this.head.next = this.head;
+      this.head.prev = this.head;
+      while (entry != this.head) {
+        Entry<T> next = entry.next;
+        entry.prev = null;
+        entry.next = null;
+        entry.bucket = null;
+        consumer.accept(entry);
+        entry = next;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,174 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.domain.TransactionDetail;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.InvalidAccountIDException;
+import com.dws.challenge.exception.InvalidExecutionTimeException;
+import com.dws.challenge.exception.SameAccountIdException;
+import com.dws.challenge.exception.ScheduledTransferNotFoundException;
+import com.dws.challenge.exception.UnsupportedBalanceException;
+import com.dws.challenge.repository.ScheduledTransfersRepository;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Service
+@Slf4j
+public class TransferSchedulerService {
+
+  private final AccountsService accountsService;
+
+  @Getter
+  private final ScheduledTransfersRepository scheduledTransfersRepository;
+
+  //Guarded by this, as are the wheel and the overdue list
+  private final Map<String, TimingWheel.Entry<ScheduledTransfer>> pendingTransfers = new HashMap<>();
+
+  private final TimingWheel<ScheduledTransfer> timingWheel;
+
+  //Execution times further ahead than this are rejected, it is kept well inside the wheel's own horizon
+  private final long maxHorizonMs;
+
+  //Due transfers are removed from the repository and executed this many at a time
+  private final int executionChunkSize;
+
+  //Transfers that were already due when they were added, executed on the next tick
+  private List<ScheduledTransfer> overdueTransfers = new ArrayList<>();
+
+  @Autowired
+  public TransferSchedulerService(AccountsService accountsService,
+                                  ScheduledTransfersRepository scheduledTransfersRepository,
+                                  @Value("${challenge.scheduler.tick-ms}") long tickMs,
+                                  @Value("${challenge.scheduler.wheel-size}") int wheelSize,
+                                  @Value("${challenge.scheduler.max-horizon-days}") long maxHorizonDays,
+                                  @Value("${challenge.scheduler.execution-chunk-size}") int executionChunkSize) {
+    this.accountsService = accountsService;
+    this.executionChunkSize = executionChunkSize;
+    this.scheduledTransfersRepository = scheduledTransfersRepository;
+    this.timingWheel = new TimingWheel<>(tickMs, wheelSize, System.currentTimeMillis());
+    long wheelHorizonMs = this.timingWheel.horizonMs() / 2;
+    this.maxHorizonMs = maxHorizonDays > wheelHorizonMs / 86_400_000L ? wheelHorizonMs : maxHorizonDays * 86_400_000L;
+
+    //Restore the transfers that were still pending when the application stopped
+    for (ScheduledTransfer scheduledTransfer : scheduledTransfersRepository.loadScheduledTransfers()) {
+      try {
+        addToWheel(scheduledTransfer);
+      } catch (IllegalArgumentException e) {
+        log.warn("Dropping scheduled transfer {}: {}", scheduledTransfer.getTransferId(), e.getMessage());
+        scheduledTransfersRepository.removeScheduledTransfer(scheduledTransfer.getTransferId());
+      }
+    }
+  }
+
+  public ScheduledTransfer scheduleTransfer(ScheduledTransfer scheduledTransfer) {
+    TransactionDetail transactionDetail = scheduledTransfer.getTransactionDetail();
+    this.accountsService.validateTransfer(transactionDetail.getAccountFromId(), transactionDetail.getAccountToId());
+    validateExecutionTime(scheduledTransfer.getExecutionTime());
+
+    ScheduledTransfer accepted = new ScheduledTransfer(UUID.randomUUID().toString(), transactionDetail,
+            scheduledTransfer.getExecutionTime());
+    this.scheduledTransfersRepository.saveScheduledTransfer(accepted);
+    addToWheel(accepted);
+    return accepted;
+  }
+
+  public void cancelScheduledTransfer(String transferId) {
+    synchronized (this) {
+      TimingWheel.Entry<ScheduledTransfer> entry = this.pendingTransfers.remove(transferId);
+      if (entry == null) {
+        throw new ScheduledTransferNotFoundException("Scheduled transfer " + transferId + " does not exist!");
+      }
+      entry.cancel();
+      this.overdueTransfers.remove(entry.getValue());
+    }
+    this.scheduledTransfersRepository.removeScheduledTransfer(transferId);
+  }
+
+  public synchronized int getPendingTransferCount() {
+    return this.pendingTransfers.size();
+  }
+
+  @Scheduled(fixedDelayString = "${challenge.scheduler.tick-ms}")
+  public void processDueTransfers() {
+    processDueTransfers(Instant.now());
+  }
+
+  /**
+   * Executes every pending transfer whose execution time is before the tick containing now.
+   * The due transfers are taken in chunks of executionChunkSize: a chunk is removed from the repository in one
+   * write before any of its transfers is executed, so that a crash can never run one twice and loses at most the
+   * chunk in flight. Each transfer then goes through transferAmount on its own, so one that fails does not hold
+   * back the others.
+   */
+  public void processDueTransfers(Instant now) {
+    List<ScheduledTransfer> dueTransfers;
+    synchronized (this) {
+      dueTransfers = this.overdueTransfers;
+      this.overdueTransfers = new ArrayList<>();
+      this.timingWheel.advanceClock(now.toEpochMilli(), entry -> dueTransfers.add(entry.getValue()));
+      for (ScheduledTransfer dueTransfer : dueTransfers) {
+        this.pendingTransfers.remove(dueTransfer.getTransferId());
+      }
+    }
+
+    for (int chunkStart = 0; chunkStart < dueTransfers.size(); chunkStart += this.executionChunkSize) {
+      List<ScheduledTransfer> chunk =
+              dueTransfers.subList(chunkStart, Math.min(chunkStart + this.executionChunkSize, dueTransfers.size()));
+      List<String> chunkTransferIds = new ArrayList<>(chunk.size());
+      for (ScheduledTransfer dueTransfer : chunk) {
+        chunkTransferIds.add(dueTransfer.getTransferId());
+      }
+      this.scheduledTransfersRepository.removeScheduledTransfers(chunkTransferIds);
+
+      for (ScheduledTransfer dueTransfer : chunk) {
+        try {
+          this.accountsService.transferAmount(dueTransfer.getTransactionDetail());
+        } catch (InvalidAccountIDException | SameAccountIdException | InsufficientBalanceException
+                 | UnsupportedBalanceException e) {
+          log.warn("Scheduled transfer {} failed: {}", dueTransfer.getTransferId(), e.getMessage());
+        }
+      }
+    }
+  }
+
+  public synchronized void clearScheduledTransfers() {
+    for (TimingWheel.Entry<ScheduledTransfer> entry : this.pendingTransfers.values()) {
+      entry.cancel();
+    }
+    this.pendingTransfers.clear();
+    this.overdueTransfers.clear();
+    this.scheduledTransfersRepository.clearScheduledTransfers();
+  }
+
+  private void validateExecutionTime(Instant executionTime) throws InvalidExecutionTimeException {
+    //Also keeps the time inside the range of epoch milliseconds used by the wheel and the repository
+    if (executionTime.isBefore(Instant.EPOCH)) {
+      throw new InvalidExecutionTimeException("executionTime " + executionTime + " is before " + Instant.EPOCH + "!");
+    }
+    if (executionTime.isAfter(Instant.now().plusMillis(this.maxHorizonMs))) {
+      throw new InvalidExecutionTimeException("executionTime " + executionTime + " is more than "
+              + this.maxHorizonMs / 86_400_000L + " days ahead!");
+    }
+  }
+
+  private synchronized void addToWheel(ScheduledTransfer scheduledTransfer) {
+    TimingWheel.Entry<ScheduledTransfer> entry =
+            new TimingWheel.Entry<>(scheduledTransfer, scheduledTransfer.getExecutionTime().toEpochMilli());
+    if (!this.timingWheel.add(entry)) {
+      this.overdueTransfers.add(scheduledTransfer);
+    }
+    this.pendingTransfers.put(scheduledTransfer.getTransferId(), entry);
+  }
+
+}
@@ -1,17 +1,25 @@
 package com.dws.challenge.web;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MultiLegTransfer;
+import com.dws.challenge.domain.ScheduledTransfer;
 import com.dws.challenge.domain.TransactionDetail;
+import com.dws.challenge.exception.AccountStorageFullException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.exception.InsufficientBalanceException;
 import com.dws.challenge.exception.InvalidAccountIDException;
+import com.dws.challenge.exception.InvalidExecutionTimeException;
 import com.dws.challenge.exception.SameAccountIdException;
+import com.dws.challenge.exception.ScheduledTransferNotFoundException;
+import com.dws.challenge.exception.UnsupportedBalanceException;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.TransferSchedulerService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -28,9 +36,12 @@ public class AccountsController {
 
   private final AccountsService accountsService;
 
+  private final TransferSchedulerService transferSchedulerService;
+
   @Autowired
-  public AccountsController(AccountsService accountsService) {
+  public AccountsController(AccountsService accountsService, TransferSchedulerService transferSchedulerService) {
     this.accountsService = accountsService;
+    this.transferSchedulerService = transferSchedulerService;
   }
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -39,8 +50,10 @@ public class AccountsController {
 
     try {
     this.accountsService.createAccount(account);
-    } catch (DuplicateAccountIdException daie) {
-      return new ResponseEntity<>(daie.getMessage(), HttpStatus.BAD_REQUEST);
+    } catch (DuplicateAccountIdException | InvalidAccountIDException | UnsupportedBalanceException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    } catch (AccountStorageFullException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.INSUFFICIENT_STORAGE);
     }
 
     return new ResponseEntity<>(HttpStatus.CREATED);
@@ -56,9 +69,41 @@ public class AccountsController {
   public ResponseEntity<Object> transferAmount(@RequestBody @Valid TransactionDetail transactionDetail){
     try{
       this.accountsService.transferAmount(transactionDetail);
-    }catch (InvalidAccountIDException | SameAccountIdException | InsufficientBalanceException e){
+    }catch (InvalidAccountIDException | SameAccountIdException | InsufficientBalanceException | UnsupportedBalanceException e){
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  @PostMapping(path = "/transfer/multi-leg", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> transferAmounts(@RequestBody @Valid MultiLegTransfer multiLegTransfer){
+    try{
+      this.accountsService.transferAmounts(multiLegTransfer);
+    }catch (InvalidAccountIDException | SameAccountIdException | InsufficientBalanceException | UnsupportedBalanceException e){
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  @PostMapping(path = "/transfer/scheduled", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> scheduleTransfer(@RequestBody @Valid ScheduledTransfer scheduledTransfer){
+    log.info("Scheduling transfer {}", scheduledTransfer);
+    try{
+      ScheduledTransfer accepted = this.transferSchedulerService.scheduleTransfer(scheduledTransfer);
+      return new ResponseEntity<>(accepted, HttpStatus.CREATED);
+    }catch (InvalidAccountIDException | SameAccountIdException | InvalidExecutionTimeException e){
       return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
     }
+  }
+
+  @DeleteMapping(path = "/transfer/scheduled/{transferId}")
+  public ResponseEntity<Object> cancelScheduledTransfer(@PathVariable String transferId){
+    log.info("Cancelling scheduled transfer {}", transferId);
+    try{
+      this.transferSchedulerService.cancelScheduledTransfer(transferId);
+    }catch (ScheduledTransferNotFoundException e){
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+    }
     return new ResponseEntity<>(HttpStatus.OK);
   }
 
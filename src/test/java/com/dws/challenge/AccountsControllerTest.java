@@ -1,16 +1,20 @@
 package com.dws.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.TransferSchedulerService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -32,6 +36,9 @@ class AccountsControllerTest {
   @Autowired
   private AccountsService accountsService;
 
+  @Autowired
+  private TransferSchedulerService transferSchedulerService;
+
   @Autowired
   private WebApplicationContext webApplicationContext;
 
@@ -41,6 +48,7 @@ class AccountsControllerTest {
 
     // Reset the existing accounts before each test.
     accountsService.getAccountsRepository().clearAccounts();
+    transferSchedulerService.clearScheduledTransfers();
   }
 
   @Test
@@ -205,4 +213,100 @@ class AccountsControllerTest {
     assertThat(toAccount.getBalance()).isEqualByComparingTo("800.34");
   }
 
+  @Test
+  void transferAmounts() throws Exception {
+    Account payer = new Account("Id-19", new BigDecimal("100.00"));
+    Account merchant = new Account("Id-20", new BigDecimal("0"));
+    Account platform = new Account("Id-21", new BigDecimal("0"));
+    this.accountsService.createAccount(payer);
+    this.accountsService.createAccount(merchant);
+    this.accountsService.createAccount(platform);
+
+    this.mockMvc.perform(post("/v1/accounts/transfer/multi-leg").contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"legs\":[{\"accountFromId\":\"Id-19\",\"accountToId\":\"Id-20\",\"transferAmount\":90},"
+                            + "{\"accountFromId\":\"Id-19\",\"accountToId\":\"Id-21\",\"transferAmount\":10}]}"))
+            .andExpect(status().isOk());
+    assertThat(payer.getBalance()).isEqualByComparingTo("0");
+    assertThat(merchant.getBalance()).isEqualByComparingTo("90");
+    assertThat(platform.getBalance()).isEqualByComparingTo("10");
+  }
+
+  @Test
+  void transferAmountsWithInsufficientBalance() throws Exception {
+    Account payer = new Account("Id-22", new BigDecimal("100.00"));
+    Account merchant = new Account("Id-23", new BigDecimal("0"));
+    Account platform = new Account("Id-24", new BigDecimal("0"));
+    this.accountsService.createAccount(payer);
+    this.accountsService.createAccount(merchant);
+    this.accountsService.createAccount(platform);
+
+    this.mockMvc.perform(post("/v1/accounts/transfer/multi-leg").contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"legs\":[{\"accountFromId\":\"Id-22\",\"accountToId\":\"Id-23\",\"transferAmount\":90},"
+                            + "{\"accountFromId\":\"Id-22\",\"accountToId\":\"Id-24\",\"transferAmount\":20}]}"))
+            .andExpect(status().isBadRequest());
+    assertThat(payer.getBalance()).isEqualByComparingTo("100");
+    assertThat(merchant.getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void transferAmountsNoLegs() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/transfer/multi-leg").contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"legs\":[]}"))
+            .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void scheduleTransfer() throws Exception {
+    Account fromAccount = new Account("Id-17", new BigDecimal("700.00"));
+    Account toAccount = new Account("Id-18", new BigDecimal("100.34"));
+    this.accountsService.createAccount(fromAccount);
+    this.accountsService.createAccount(toAccount);
+    String executionTime = Instant.now().plusSeconds(86400).toString();
+
+    this.mockMvc.perform(post("/v1/accounts/transfer/scheduled").contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"transactionDetail\":{\"accountFromId\":\"Id-17\",\"accountToId\":\"Id-18\",\"transferAmount\":50},"
+                            + "\"executionTime\":\"" + executionTime + "\"}"))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.transferId").isNotEmpty());
+    assertThat(transferSchedulerService.getPendingTransferCount()).isEqualTo(1);
+    assertThat(fromAccount.getBalance()).isEqualByComparingTo("700");
+  }
+
+  @Test
+  void scheduleTransferToInvalidAccountId() throws Exception {
+    String executionTime = Instant.now().plusSeconds(86400).toString();
+
+    this.mockMvc.perform(post("/v1/accounts/transfer/scheduled").contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"transactionDetail\":{\"accountFromId\":\"Id-1789\",\"accountToId\":\"Id-18\",\"transferAmount\":50},"
+                            + "\"executionTime\":\"" + executionTime + "\"}"))
+            .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void scheduleTransferNoExecutionTime() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/transfer/scheduled").contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"transactionDetail\":{\"accountFromId\":\"Id-17\",\"accountToId\":\"Id-18\",\"transferAmount\":50}}"))
+            .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void scheduleTransferBeyondHorizon() throws Exception {
+    Account fromAccount = new Account("Id-25", new BigDecimal("700.00"));
+    Account toAccount = new Account("Id-26", new BigDecimal("100.34"));
+    this.accountsService.createAccount(fromAccount);
+    this.accountsService.createAccount(toAccount);
+
+    this.mockMvc.perform(post("/v1/accounts/transfer/scheduled").contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"transactionDetail\":{\"accountFromId\":\"Id-25\",\"accountToId\":\"Id-26\",\"transferAmount\":50},"
+                            + "\"executionTime\":\"+10000000-01-01T00:00:00Z\"}"))
+            .andExpect(status().isBadRequest());
+    assertThat(transferSchedulerService.getPendingTransferCount()).isEqualTo(0);
+  }
+
+  @Test
+  void cancelUnknownScheduledTransfer() throws Exception {
+    this.mockMvc.perform(delete("/v1/accounts/transfer/scheduled/unknown-transfer"))
+            .andExpect(status().isNotFound());
+  }
+
 }
@@ -0,0 +1,273 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MultiLegTransfer;
+import com.dws.challenge.domain.TransactionDetail;
+import com.dws.challenge.exception.AccountStorageFullException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InvalidAccountIDException;
+import com.dws.challenge.exception.UnsupportedBalanceException;
+import com.dws.challenge.repository.AccountsRepositoryTiered;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.EmailNotificationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AccountsRepositoryTieredTest {
+
+  private static final int HOT_CAPACITY = 4;
+
+  @TempDir
+  Path storageDirectory;
+
+  private AccountsRepositoryTiered accountsRepository;
+
+  private AccountsService accountsService;
+
+  @BeforeEach
+  void prepareRepository() {
+    this.accountsRepository = newRepository();
+    this.accountsService = newService(this.accountsRepository);
+  }
+
+  @AfterEach
+  void closeRepository() {
+    this.accountsRepository.close();
+  }
+
+  @Test
+  void getAccount_staysWithinHotCapacity() {
+    for (int i = 0; i < 100; i++) {
+      this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(i + ".25")));
+    }
+    for (int i = 0; i < 100; i++) {
+      assertThat(this.accountsService.getAccount("Id-" + i).getBalance()).isEqualByComparingTo(i + ".25");
+      assertThat(this.accountsRepository.getHotAccountCount()).isLessThanOrEqualTo(HOT_CAPACITY);
+    }
+    assertThat(this.accountsService.getAccount("Id-unknown")).isNull();
+    assertThat(this.accountsRepository.isAccountIdPresent("Id-99")).isTrue();
+    assertThat(this.accountsRepository.isAccountIdPresent("Id-unknown")).isFalse();
+  }
+
+  @Test
+  void createAccount_failsOnDuplicateId() {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("10")));
+    try {
+      this.accountsService.createAccount(new Account("Id-1", new BigDecimal("20")));
+      fail("Should have failed when adding duplicate account");
+    } catch (DuplicateAccountIdException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account id Id-1 already exists!");
+    }
+  }
+
+  @Test
+  void transferAmount_survivesEviction() {
+    for (int i = 0; i < 20; i++) {
+      this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal("100.00")));
+    }
+    for (int i = 0; i < 19; i++) {
+      this.accountsService.transferAmount(new TransactionDetail("Id-" + i, "Id-" + (i + 1), new BigDecimal("100.00")));
+    }
+
+    for (int i = 0; i < 19; i++) {
+      assertThat(this.accountsService.getAccount("Id-" + i).getBalance()).isEqualByComparingTo("0");
+    }
+    assertThat(this.accountsService.getAccount("Id-19").getBalance()).isEqualByComparingTo("2000");
+  }
+
+  @Test
+  void transferAmounts_survivesEviction() {
+    for (int i = 0; i < 10; i++) {
+      this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal("0")));
+    }
+    this.accountsService.createAccount(new Account("Id-payer", new BigDecimal("1000")));
+    TransactionDetail[] legs = new TransactionDetail[10];
+    for (int i = 0; i < 10; i++) {
+      legs[i] = new TransactionDetail("Id-payer", "Id-" + i, new BigDecimal("100"));
+    }
+    this.accountsService.transferAmounts(new MultiLegTransfer(List.of(legs)));
+
+    assertThat(this.accountsService.getAccount("Id-payer").getBalance()).isEqualByComparingTo("0");
+    for (int i = 0; i < 10; i++) {
+      assertThat(this.accountsService.getAccount("Id-" + i).getBalance()).isEqualByComparingTo("100");
+    }
+  }
+
+  @Test
+  void transferAmount_concurrencyWithEviction() throws InterruptedException {
+    for (int i = 0; i < 16; i++) {
+      this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal("1000")));
+    }
+    int numberOfThreads = 8;
+    ExecutorService es = Executors.newFixedThreadPool(numberOfThreads);
+    for (int t = 0; t < numberOfThreads; t++) {
+      int offset = t;
+      es.submit(() -> {
+        for (int i = 0; i < 200; i++) {
+          String from = "Id-" + ((i + offset) % 16);
+          String to = "Id-" + ((i + offset + 5) % 16);
+          this.accountsService.transferAmount(new TransactionDetail(from, to, new BigDecimal("1")));
+        }
+      });
+    }
+    es.shutdown();
+    es.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < 16; i++) {
+      total = total.add(this.accountsService.getAccount("Id-" + i).getBalance());
+    }
+    assertThat(total).isEqualByComparingTo("16000");
+    assertThat(this.accountsRepository.getHotAccountCount()).isLessThanOrEqualTo(HOT_CAPACITY);
+  }
+
+  @Test
+  void accounts_surviveRestart() {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100.00")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("0")));
+    this.accountsService.transferAmount(new TransactionDetail("Id-1", "Id-2", new BigDecimal("40.50")));
+    this.accountsRepository.close();
+
+    this.accountsRepository = newRepository();
+    AccountsService restarted = newService(this.accountsRepository);
+    assertThat(restarted.getAccount("Id-1").getBalance()).isEqualByComparingTo("59.50");
+    assertThat(restarted.getAccount("Id-2").getBalance()).isEqualByComparingTo("40.50");
+  }
+
+  @Test
+  void transferAmount_unstorableBalanceChangesNothing() {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100.00")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("100.00")));
+    try {
+      this.accountsService.transferAmount(new TransactionDetail("Id-1", "Id-2",
+              new BigDecimal("1.0000000000000000000000000000000000000001")));
+      fail("Balance with too many significant digits.");
+    } catch (UnsupportedBalanceException ex) {
+      assertThat(ex.getMessage()).startsWith("Balance ");
+    }
+
+    assertThat(this.accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+    evictAll();
+    assertThat(this.accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+    assertThat(this.accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void transferAmounts_unstorableBalanceAppliesNoLeg() {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100.00")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("0")));
+    this.accountsService.createAccount(new Account("Id-3", new BigDecimal("0")));
+    try {
+      this.accountsService.transferAmounts(new MultiLegTransfer(List.of(
+              new TransactionDetail("Id-1", "Id-2", new BigDecimal("10")),
+              new TransactionDetail("Id-1", "Id-3", new BigDecimal("1.0000000000000000000000000000000000000001")))));
+      fail("Balance with too many significant digits.");
+    } catch (UnsupportedBalanceException ex) {
+      assertThat(ex.getMessage()).startsWith("Balance ");
+    }
+
+    evictAll();
+    assertThat(this.accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+    assertThat(this.accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("0");
+    assertThat(this.accountsService.getAccount("Id-3").getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void createAccount_unstorableBalance() {
+    try {
+      this.accountsService.createAccount(new Account("Id-1", new BigDecimal("1.0000000000000000000000000000000000000001")));
+      fail("Balance with too many significant digits.");
+    } catch (UnsupportedBalanceException ex) {
+      assertThat(this.accountsRepository.isAccountIdPresent("Id-1")).isFalse();
+    }
+  }
+
+  @Test
+  void accountIdTooLongToStore() {
+    String longAccountId = "Id-" + "x".repeat(100);
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100.00")));
+
+    assertThat(this.accountsRepository.isAccountIdPresent(longAccountId)).isFalse();
+    assertThat(this.accountsService.getAccount(longAccountId)).isNull();
+    try {
+      this.accountsService.transferAmount(new TransactionDetail("Id-1", longAccountId, new BigDecimal("10")));
+      fail("AccountFromId or AccountToId doest not exist.");
+    } catch (InvalidAccountIDException ex) {
+      assertThat(ex.getMessage()).isEqualTo("accountFromId Id-1 or accountToId " + longAccountId + " does not exist!");
+    }
+    try {
+      this.accountsService.createAccount(new Account(longAccountId, new BigDecimal("100.00")));
+      fail("Account id is too long to be stored.");
+    } catch (InvalidAccountIDException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account id " + longAccountId + " is longer than 64 bytes!");
+    }
+  }
+
+  @Test
+  void createAccount_failsAboveMaxLoadFactor() {
+    //The cold tier holds 256 slots and accepts at most 70% of them
+    for (int i = 0; i < 179; i++) {
+      this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(i)));
+    }
+    try {
+      this.accountsService.createAccount(new Account("Id-179", BigDecimal.ZERO));
+      fail("Account storage is full.");
+    } catch (AccountStorageFullException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account storage is full, it holds at most 179 accounts!");
+    }
+    try {
+      this.accountsService.createAccount(new Account("Id-0", BigDecimal.ZERO));
+      fail("Should have failed when adding duplicate account");
+    } catch (DuplicateAccountIdException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account id Id-0 already exists!");
+    }
+
+    this.accountsRepository.close();
+    this.accountsRepository = newRepository();
+    AccountsService restarted = newService(this.accountsRepository);
+    for (int i = 0; i < 179; i++) {
+      assertThat(restarted.getAccount("Id-" + i).getBalance()).isEqualByComparingTo(String.valueOf(i));
+    }
+    assertThat(this.accountsRepository.isAccountIdPresent("Id-179")).isFalse();
+    try {
+      restarted.createAccount(new Account("Id-179", BigDecimal.ZERO));
+      fail("Account storage is full.");
+    } catch (AccountStorageFullException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account storage is full, it holds at most 179 accounts!");
+    }
+  }
+
+  //Reads enough other accounts to push every earlier account out of the hot tier
+  private void evictAll() {
+    for (int i = 0; i < 2 * HOT_CAPACITY; i++) {
+      String accountId = "Id-evict-" + i;
+      if (!this.accountsRepository.isAccountIdPresent(accountId)) {
+        this.accountsService.createAccount(new Account(accountId, BigDecimal.ZERO));
+      }
+      this.accountsService.getAccount(accountId);
+    }
+  }
+
+  private AccountsRepositoryTiered newRepository() {
+    return new AccountsRepositoryTiered(HOT_CAPACITY, 256, this.storageDirectory.resolve("accounts.dat").toString());
+  }
+
+  private static AccountsService newService(AccountsRepositoryTiered accountsRepository) {
+    AccountsService accountsService = new AccountsService(accountsRepository);
+    accountsService.notificationService = new EmailNotificationService();
+    return accountsService;
+  }
+
+}
@@ -4,9 +4,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.concurrent.*;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MultiLegTransfer;
 import com.dws.challenge.domain.TransactionDetail;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.exception.InsufficientBalanceException;
@@ -130,4 +132,116 @@ class AccountsServiceTest {
     assertThat(toAccount.getBalance()).isEqualByComparingTo("900");
   }
 
+  //Unit test cases to test scenarios for multi-leg transfer functionality
+  @Test
+  void transferAmounts_feeSplit(){
+    Account payer = new Account("Id-81", new BigDecimal("1000.00"));
+    Account merchant = new Account("Id-82", new BigDecimal("0"));
+    Account platform = new Account("Id-83", new BigDecimal("10.00"));
+    this.accountsService.createAccount(payer);
+    this.accountsService.createAccount(merchant);
+    this.accountsService.createAccount(platform);
+    MultiLegTransfer multiLegTransfer = new MultiLegTransfer(List.of(
+            new TransactionDetail("Id-81","Id-82",new BigDecimal("950")),
+            new TransactionDetail("Id-81","Id-83",new BigDecimal("50"))));
+    this.accountsService.transferAmounts(multiLegTransfer);
+
+    assertThat(payer.getBalance()).isEqualByComparingTo("0");
+    assertThat(merchant.getBalance()).isEqualByComparingTo("950");
+    assertThat(platform.getBalance()).isEqualByComparingTo("60");
+  }
+
+  @Test
+  void transferAmounts_chain(){
+    Account first = new Account("Id-84", new BigDecimal("300.00"));
+    Account second = new Account("Id-85", new BigDecimal("0"));
+    Account third = new Account("Id-86", new BigDecimal("0"));
+    this.accountsService.createAccount(first);
+    this.accountsService.createAccount(second);
+    this.accountsService.createAccount(third);
+    MultiLegTransfer multiLegTransfer = new MultiLegTransfer(List.of(
+            new TransactionDetail("Id-84","Id-85",new BigDecimal("300")),
+            new TransactionDetail("Id-85","Id-86",new BigDecimal("200"))));
+    this.accountsService.transferAmounts(multiLegTransfer);
+
+    assertThat(first.getBalance()).isEqualByComparingTo("0");
+    assertThat(second.getBalance()).isEqualByComparingTo("100");
+    assertThat(third.getBalance()).isEqualByComparingTo("200");
+  }
+
+  @Test
+  void transferAmounts_insufficientBalanceAppliesNoLeg(){
+    Account first = new Account("Id-87", new BigDecimal("300.00"));
+    Account second = new Account("Id-88", new BigDecimal("0"));
+    Account third = new Account("Id-89", new BigDecimal("0"));
+    this.accountsService.createAccount(first);
+    this.accountsService.createAccount(second);
+    this.accountsService.createAccount(third);
+    //The chain is in the wrong order, Id-88 has nothing to send yet
+    MultiLegTransfer multiLegTransfer = new MultiLegTransfer(List.of(
+            new TransactionDetail("Id-87","Id-89",new BigDecimal("100")),
+            new TransactionDetail("Id-88","Id-89",new BigDecimal("200")),
+            new TransactionDetail("Id-87","Id-88",new BigDecimal("200"))));
+    try {
+      this.accountsService.transferAmounts(multiLegTransfer);
+      fail("Insufficient balance.");
+    } catch (InsufficientBalanceException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Insufficient balance in accountFromId Id-88");
+    }
+
+    assertThat(first.getBalance()).isEqualByComparingTo("300");
+    assertThat(second.getBalance()).isEqualByComparingTo("0");
+    assertThat(third.getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void transferAmounts_invalidAccountIdAppliesNoLeg(){
+    Account first = new Account("Id-90", new BigDecimal("300.00"));
+    Account second = new Account("Id-91", new BigDecimal("0"));
+    this.accountsService.createAccount(first);
+    this.accountsService.createAccount(second);
+    MultiLegTransfer multiLegTransfer = new MultiLegTransfer(List.of(
+            new TransactionDetail("Id-90","Id-91",new BigDecimal("100")),
+            new TransactionDetail("Id-90","Id-9245",new BigDecimal("100"))));
+    try {
+      this.accountsService.transferAmounts(multiLegTransfer);
+      fail("AccountFromId or AccountToId doest not exist.");
+    } catch (InvalidAccountIDException ex) {
+      assertThat(ex.getMessage()).isEqualTo("accountFromId Id-90 or accountToId Id-9245 does not exist!");
+    }
+
+    assertThat(first.getBalance()).isEqualByComparingTo("300");
+    assertThat(second.getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void transferAmounts_concurrency() throws InterruptedException {
+    Account first = new Account("Id-93", new BigDecimal("1000.00"));
+    Account second = new Account("Id-94", new BigDecimal("1000.00"));
+    Account third = new Account("Id-95", new BigDecimal("1000.00"));
+    this.accountsService.createAccount(first);
+    this.accountsService.createAccount(second);
+    this.accountsService.createAccount(third);
+    int numberOfThreads = 6;
+    ExecutorService es = Executors.newFixedThreadPool(numberOfThreads);
+    //Rotate the money in opposite directions so that the legs name the accounts in opposite orders
+    Runnable forward = ()-> this.accountsService.transferAmounts(new MultiLegTransfer(List.of(
+            new TransactionDetail("Id-93","Id-94",new BigDecimal("10")),
+            new TransactionDetail("Id-94","Id-95",new BigDecimal("10")),
+            new TransactionDetail("Id-95","Id-93",new BigDecimal("5")))));
+    Runnable backward = ()-> this.accountsService.transferAmounts(new MultiLegTransfer(List.of(
+            new TransactionDetail("Id-95","Id-94",new BigDecimal("10")),
+            new TransactionDetail("Id-94","Id-93",new BigDecimal("10")))));
+    for(int i=1;i<=50;i++){
+      es.submit(forward);
+      es.submit(backward);
+    }
+    es.shutdown();
+    es.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+
+    assertThat(first.getBalance()).isEqualByComparingTo("1250");
+    assertThat(second.getBalance()).isEqualByComparingTo("1000");
+    assertThat(third.getBalance()).isEqualByComparingTo("750");
+  }
+
 }
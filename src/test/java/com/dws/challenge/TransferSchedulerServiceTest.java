@@ -0,0 +1,275 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.domain.TransactionDetail;
+import com.dws.challenge.exception.InvalidAccountIDException;
+import com.dws.challenge.exception.InvalidExecutionTimeException;
+import com.dws.challenge.exception.ScheduledTransferNotFoundException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.ScheduledTransfersRepositoryFile;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.TransferSchedulerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+class TransferSchedulerServiceTest {
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @TempDir
+  Path journalDirectory;
+
+  private TransferSchedulerService transferSchedulerService;
+
+  @BeforeEach
+  void prepareScheduler() {
+    //A scheduler of our own so that the test controls the clock instead of the @Scheduled tick
+    this.transferSchedulerService = newScheduler();
+  }
+
+  @Test
+  void scheduledTransfer_executesWhenDue() {
+    Account fromAccount = new Account("Id-71", new BigDecimal("500.00"));
+    Account toAccount = new Account("Id-72", new BigDecimal("100.00"));
+    this.accountsService.createAccount(fromAccount);
+    this.accountsService.createAccount(toAccount);
+    Instant now = Instant.now();
+    this.transferSchedulerService.scheduleTransfer(new ScheduledTransfer(
+            new TransactionDetail("Id-71", "Id-72", new BigDecimal("200")), now.plusSeconds(30)));
+
+    this.transferSchedulerService.processDueTransfers(now.plusSeconds(10));
+    assertThat(fromAccount.getBalance()).isEqualByComparingTo("500");
+    assertThat(this.transferSchedulerService.getPendingTransferCount()).isEqualTo(1);
+
+    this.transferSchedulerService.processDueTransfers(now.plusSeconds(32));
+    assertThat(fromAccount.getBalance()).isEqualByComparingTo("300");
+    assertThat(toAccount.getBalance()).isEqualByComparingTo("300");
+    assertThat(this.transferSchedulerService.getPendingTransferCount()).isEqualTo(0);
+  }
+
+  @Test
+  void scheduledTransfer_farFutureCascadesThroughWheelLevels() {
+    Account fromAccount = new Account("Id-73", new BigDecimal("500.00"));
+    Account toAccount = new Account("Id-74", new BigDecimal("100.00"));
+    this.accountsService.createAccount(fromAccount);
+    this.accountsService.createAccount(toAccount);
+    Instant now = Instant.now();
+    Instant executionTime = now.plus(Duration.ofDays(3));
+    this.transferSchedulerService.scheduleTransfer(new ScheduledTransfer(
+            new TransactionDetail("Id-73", "Id-74", new BigDecimal("50")), executionTime));
+
+    this.transferSchedulerService.processDueTransfers(executionTime.minusSeconds(5));
+    assertThat(fromAccount.getBalance()).isEqualByComparingTo("500");
+
+    this.transferSchedulerService.processDueTransfers(executionTime.plusSeconds(2));
+    assertThat(fromAccount.getBalance()).isEqualByComparingTo("450");
+    assertThat(toAccount.getBalance()).isEqualByComparingTo("150");
+  }
+
+  @Test
+  void scheduledTransfer_cancel() {
+    Account fromAccount = new Account("Id-75", new BigDecimal("500.00"));
+    Account toAccount = new Account("Id-76", new BigDecimal("100.00"));
+    this.accountsService.createAccount(fromAccount);
+    this.accountsService.createAccount(toAccount);
+    Instant now = Instant.now();
+    ScheduledTransfer scheduledTransfer = this.transferSchedulerService.scheduleTransfer(new ScheduledTransfer(
+            new TransactionDetail("Id-75", "Id-76", new BigDecimal("200")), now.plusSeconds(30)));
+
+    this.transferSchedulerService.cancelScheduledTransfer(scheduledTransfer.getTransferId());
+    this.transferSchedulerService.processDueTransfers(now.plusSeconds(60));
+
+    assertThat(fromAccount.getBalance()).isEqualByComparingTo("500");
+    assertThat(toAccount.getBalance()).isEqualByComparingTo("100");
+    try {
+      this.transferSchedulerService.cancelScheduledTransfer(scheduledTransfer.getTransferId());
+      fail("Scheduled transfer was already cancelled.");
+    } catch (ScheduledTransferNotFoundException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Scheduled transfer " + scheduledTransfer.getTransferId() + " does not exist!");
+    }
+  }
+
+  @Test
+  void scheduledTransfer_survivesRestart() {
+    Account fromAccount = new Account("Id-77", new BigDecimal("500.00"));
+    Account toAccount = new Account("Id-78", new BigDecimal("100.00"));
+    this.accountsService.createAccount(fromAccount);
+    this.accountsService.createAccount(toAccount);
+    Instant now = Instant.now();
+    this.transferSchedulerService.scheduleTransfer(new ScheduledTransfer(
+            new TransactionDetail("Id-77", "Id-78", new BigDecimal("100")), now.plusSeconds(30)));
+    ScheduledTransfer cancelled = this.transferSchedulerService.scheduleTransfer(new ScheduledTransfer(
+            new TransactionDetail("Id-77", "Id-78", new BigDecimal("300")), now.plusSeconds(30)));
+    this.transferSchedulerService.cancelScheduledTransfer(cancelled.getTransferId());
+
+    TransferSchedulerService restarted = newScheduler();
+    assertThat(restarted.getPendingTransferCount()).isEqualTo(1);
+    restarted.processDueTransfers(now.plusSeconds(32));
+
+    assertThat(fromAccount.getBalance()).isEqualByComparingTo("400");
+    assertThat(toAccount.getBalance()).isEqualByComparingTo("200");
+  }
+
+  @Test
+  void scheduledTransfer_invalidAccountId() {
+    try {
+      this.transferSchedulerService.scheduleTransfer(new ScheduledTransfer(
+              new TransactionDetail("Id-7945", "Id-7946", new BigDecimal("100")), Instant.now().plusSeconds(30)));
+      fail("AccountFromId or AccountToId doest not exist.");
+    } catch (InvalidAccountIDException ex) {
+      assertThat(ex.getMessage()).isEqualTo("accountFromId Id-7945 or accountToId Id-7946 does not exist!");
+    }
+  }
+
+  @Test
+  void scheduledTransfer_beyondHorizonIsRejectedBeforeItIsStored() {
+    Account fromAccount = new Account("Id-79", new BigDecimal("500.00"));
+    Account toAccount = new Account("Id-80", new BigDecimal("100.00"));
+    this.accountsService.createAccount(fromAccount);
+    this.accountsService.createAccount(toAccount);
+    TransactionDetail transactionDetail = new TransactionDetail("Id-79", "Id-80", new BigDecimal("100"));
+
+    for (Instant executionTime : new Instant[] {Instant.now().plus(Duration.ofDays(3661)),
+            Instant.parse("+10000000-01-01T00:00:00Z"), Instant.MAX, Instant.MIN}) {
+      try {
+        this.transferSchedulerService.scheduleTransfer(new ScheduledTransfer(transactionDetail, executionTime));
+        fail("executionTime " + executionTime + " should have been rejected.");
+      } catch (InvalidExecutionTimeException ex) {
+        assertThat(this.transferSchedulerService.getPendingTransferCount()).isEqualTo(0);
+      }
+    }
+
+    assertThat(newScheduler().getPendingTransferCount()).isEqualTo(0);
+  }
+
+  @Test
+  void scheduledTransfer_unlimitedHorizonStopsAtWheelHorizon() {
+    Account fromAccount = new Account("Id-101", new BigDecimal("500.00"));
+    Account toAccount = new Account("Id-102", new BigDecimal("100.00"));
+    this.accountsService.createAccount(fromAccount);
+    this.accountsService.createAccount(toAccount);
+    TransferSchedulerService unlimited = newScheduler(Long.MAX_VALUE);
+    TransactionDetail transactionDetail = new TransactionDetail("Id-101", "Id-102", new BigDecimal("100"));
+
+    unlimited.scheduleTransfer(new ScheduledTransfer(transactionDetail, Instant.now().plus(Duration.ofDays(365_000))));
+    try {
+      unlimited.scheduleTransfer(new ScheduledTransfer(transactionDetail, Instant.parse("+10000000-01-01T00:00:00Z")));
+      fail("executionTime beyond the timing wheel horizon should have been rejected.");
+    } catch (InvalidExecutionTimeException ex) {
+      assertThat(unlimited.getPendingTransferCount()).isEqualTo(1);
+    }
+
+    assertThat(newScheduler(Long.MAX_VALUE).getPendingTransferCount()).isEqualTo(1);
+  }
+
+  @Test
+  void scheduledTransfer_laterChunksStayStoredWhileEarlierChunkRuns() {
+    Set<String> removedTransferIds = new HashSet<>();
+    ScheduledTransfersRepositoryFile repository = new ScheduledTransfersRepositoryFile(
+            this.journalDirectory.resolve("chunked.journal").toString()) {
+      @Override
+      public synchronized void removeScheduledTransfers(Collection<String> transferIds) {
+        super.removeScheduledTransfers(transferIds);
+        removedTransferIds.addAll(transferIds);
+      }
+    };
+    //Records how many transfers had left the repository whenever a transfer executes
+    List<Integer> removedWhileExecuting = new ArrayList<>();
+    AccountsService chunkedAccountsService = new AccountsService(new AccountsRepositoryInMemory());
+    chunkedAccountsService.notificationService = (account, transferDescription) -> {
+      if (account.getAccountId().equals("Id-105")) {
+        removedWhileExecuting.add(removedTransferIds.size());
+      }
+    };
+    chunkedAccountsService.createAccount(new Account("Id-105", new BigDecimal("500.00")));
+    chunkedAccountsService.createAccount(new Account("Id-106", new BigDecimal("0")));
+    TransferSchedulerService chunked = new TransferSchedulerService(chunkedAccountsService, repository,
+            1000, 64, 3660, 2);
+    Instant executionTime = Instant.now().plusSeconds(30);
+    for (int i = 0; i < 5; i++) {
+      chunked.scheduleTransfer(new ScheduledTransfer(
+              new TransactionDetail("Id-105", "Id-106", new BigDecimal("10")), executionTime));
+    }
+
+    chunked.processDueTransfers(executionTime.plusSeconds(2));
+
+    assertThat(removedWhileExecuting).containsExactly(2, 2, 4, 4, 5);
+    assertThat(chunkedAccountsService.getAccount("Id-106").getBalance()).isEqualByComparingTo("50");
+    assertThat(repository.loadScheduledTransfers()).isEmpty();
+  }
+
+  @Test
+  void scheduledTransfersRepository_failedSaveLeavesNoPartialRecord() {
+    ScheduledTransfersRepositoryFile repository = new ScheduledTransfersRepositoryFile(
+            this.journalDirectory.resolve("scheduled-transfers.journal").toString());
+    TransactionDetail transactionDetail = new TransactionDetail("Id-103", "Id-104", new BigDecimal("100"));
+    try {
+      repository.saveScheduledTransfer(new ScheduledTransfer("unstorable", transactionDetail, Instant.MAX));
+      fail("Instant.MAX is outside of the epoch millisecond range.");
+    } catch (ArithmeticException ex) {
+      //expected
+    }
+    Instant executionTime = Instant.now().plusSeconds(30);
+    repository.saveScheduledTransfer(new ScheduledTransfer("stored", transactionDetail, executionTime));
+
+    List<ScheduledTransfer> loaded = repository.loadScheduledTransfers();
+    assertThat(loaded).hasSize(1);
+    assertThat(loaded.get(0).getTransferId()).isEqualTo("stored");
+    assertThat(loaded.get(0).getTransactionDetail()).isEqualTo(transactionDetail);
+    assertThat(loaded.get(0).getExecutionTime().toEpochMilli()).isEqualTo(executionTime.toEpochMilli());
+  }
+
+  @Test
+  void scheduledTransfersRepository_compactsWhileRunning() throws Exception {
+    Path journalPath = this.journalDirectory.resolve("compacted.journal");
+    ScheduledTransfersRepositoryFile repository = new ScheduledTransfersRepositoryFile(journalPath.toString());
+    TransactionDetail transactionDetail = new TransactionDetail("Id-103", "Id-104", new BigDecimal("100"));
+    List<String> transferIds = new ArrayList<>();
+    for (int i = 0; i < 12000; i++) {
+      repository.saveScheduledTransfer(new ScheduledTransfer("transfer-" + i, transactionDetail, Instant.now()));
+      transferIds.add("transfer-" + i);
+    }
+    long fullSize = Files.size(journalPath);
+
+    repository.removeScheduledTransfers(transferIds.subList(0, 11000));
+
+    assertThat(Files.size(journalPath)).isLessThan(fullSize / 5);
+    List<ScheduledTransfer> loaded = repository.loadScheduledTransfers();
+    assertThat(loaded).hasSize(1000);
+    assertThat(loaded.get(0).getTransferId()).isEqualTo("transfer-11000");
+  }
+
+  private TransferSchedulerService newScheduler() {
+    return newScheduler(3660);
+  }
+
+  private TransferSchedulerService newScheduler(long maxHorizonDays) {
+    String journalPath = this.journalDirectory.resolve("scheduled-transfers.journal").toString();
+    return new TransferSchedulerService(this.accountsService, new ScheduledTransfersRepositoryFile(journalPath),
+            1000, 64, maxHorizonDays, 1000);
+  }
+
+}